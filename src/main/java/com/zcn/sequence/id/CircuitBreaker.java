@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 保护 IdSlotDao 调用的熔断器。
+ * <p>
+ * 连续失败达到阈值后进入 OPEN 状态，在退避时间内拒绝所有调用。退避时间到达后进入 HALF_OPEN 状态，
+ * 每个退避周期只放行一次探测调用：成功则恢复 CLOSED，失败则以指数增长并加入随机抖动的退避时间重新进入 OPEN，
+ * 避免大量节点在数据库恢复时同时重试。
+ *
+ * @author zicung
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+
+    /**
+     * 进入 OPEN 状态所需的连续失败次数
+     */
+    private final int failureThreshold;
+
+    /**
+     * 第一次进入 OPEN 状态的退避时间
+     */
+    private final long baseBackoffMillis;
+
+    /**
+     * 最大退避时间
+     */
+    private final long maxBackoffMillis;
+
+    private final CircuitBreakerListener listener;
+
+    private final LongSupplier clock;
+
+    private volatile State state = State.CLOSED;
+
+    /**
+     * 连续失败次数
+     */
+    private final AtomicInteger failures = new AtomicInteger(0);
+
+    /**
+     * 连续进入 OPEN 状态的次数，用于计算指数退避
+     */
+    private int openCount = 0;
+
+    /**
+     * 当前退避时间
+     */
+    private long backoffMillis = 0;
+
+    /**
+     * 允许下一次探测调用的时间
+     */
+    private volatile long retryAtMillis = 0;
+
+    public CircuitBreaker(
+            String name,
+            int failureThreshold,
+            long baseBackoffMillis,
+            long maxBackoffMillis,
+            CircuitBreakerListener listener) {
+        this(name, failureThreshold, baseBackoffMillis, maxBackoffMillis, listener, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(
+            String name,
+            int failureThreshold,
+            long baseBackoffMillis,
+            long maxBackoffMillis,
+            CircuitBreakerListener listener,
+            LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.listener = listener;
+        this.clock = clock;
+    }
+
+    /**
+     * 判断当前是否可能放行调用，不改变熔断器状态
+     */
+    public boolean isCallPermitted() {
+        return state == State.CLOSED || clock.getAsLong() >= retryAtMillis;
+    }
+
+    /**
+     * 申请一次调用。OPEN 及 HALF_OPEN 状态下每个退避周期只放行一次。
+     *
+     * @return 是否放行
+     */
+    public boolean tryAcquire() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+
+            long now = clock.getAsLong();
+            if (now < retryAtMillis) {
+                return false;
+            }
+
+            // 探测调用未返回时，下一个退避周期再放行一次
+            retryAtMillis = now + backoffMillis;
+            if (state == State.OPEN) {
+                changeState(State.HALF_OPEN);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 归还 tryAcquire 获得但未使用的探测机会，使下一次调用可以立即探测
+     */
+    public void release() {
+        if (state == State.CLOSED) {
+            return;
+        }
+
+        synchronized (this) {
+            if (state != State.CLOSED) {
+                retryAtMillis = 0;
+            }
+        }
+    }
+
+    public void onSuccess() {
+        failures.set(0);
+        if (state == State.CLOSED) {
+            return;
+        }
+
+        synchronized (this) {
+            if (state != State.CLOSED) {
+                openCount = 0;
+                backoffMillis = 0;
+                retryAtMillis = 0;
+                changeState(State.CLOSED);
+            }
+        }
+    }
+
+    public void onFailure() {
+        if (state == State.CLOSED && failures.incrementAndGet() < failureThreshold) {
+            return;
+        }
+
+        synchronized (this) {
+            if (state == State.OPEN) {
+                return;
+            }
+
+            long exp = baseBackoffMillis << Math.min(openCount, 20);
+            long backoff = Math.min(maxBackoffMillis, exp);
+
+            // 等量抖动：[backoff / 2, backoff]
+            backoffMillis = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            retryAtMillis = clock.getAsLong() + backoffMillis;
+            openCount++;
+            failures.set(0);
+            changeState(State.OPEN);
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void changeState(State to) {
+        State from = this.state;
+        this.state = to;
+        if (to == State.OPEN) {
+            LOG.warn("Circuit breaker " + name + " changed from " + from + " to " + to + ", retry after "
+                    + backoffMillis + "ms.");
+        } else {
+            LOG.info("Circuit breaker " + name + " changed from " + from + " to " + to + ".");
+        }
+
+        if (listener != null) {
+            try {
+                listener.onStateChange(name, from, to);
+            } catch (Exception e) {
+                LOG.error("Circuit breaker listener error.", e);
+            }
+        }
+    }
+}
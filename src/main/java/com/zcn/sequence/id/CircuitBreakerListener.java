@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id;
+
+/**
+ * 熔断器状态变化的监听器，可用于上报监控或告警。
+ *
+ * @author zicung
+ */
+public interface CircuitBreakerListener {
+
+    /**
+     * 熔断器状态发生变化时调用
+     *
+     * @param name 熔断器名称，如 datasource、type-1
+     * @param from 变化前的状态
+     * @param to   变化后的状态
+     */
+    void onStateChange(String name, CircuitBreaker.State from, CircuitBreaker.State to);
+}
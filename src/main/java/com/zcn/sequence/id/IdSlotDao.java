@@ -17,11 +17,13 @@
 
 package com.zcn.sequence.id;
 
+import com.zcn.sequence.id.model.IdRecycle;
 import com.zcn.sequence.id.model.IdSlot;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.util.ArrayList;
 import java.util.List;
 import javax.sql.DataSource;
@@ -35,6 +37,11 @@ public class IdSlotDao {
 
     private final DataSource dataSource;
 
+    /**
+     * 是否开启热点行拆分，开启后需要 sequence_id 表的 stripe、stripes 列
+     */
+    private volatile boolean stripingEnabled = false;
+
     private static final String GET_ALL =
             "select id, type, max, step, max_step, step_duration, update_time from sequence_id";
 
@@ -43,18 +50,51 @@ public class IdSlotDao {
     private static final String GET_ONE =
             "select id, type, max, step, update_time, max_step, step_duration from sequence_id where type = ?";
 
+    private static final String GET_ALL_STRIPED =
+            "select id, type, stripe, stripes, max, step, max_step, step_duration, update_time from sequence_id";
+
+    private static final String UPDATE_MAX_STRIPED =
+            "update sequence_id set max = max + ? where type = ? and stripe = ?";
+
+    private static final String GET_ONE_STRIPED =
+            "select id, type, stripe, stripes, max, step, update_time, max_step, step_duration"
+                    + " from sequence_id where type = ? and stripe = ?";
+
+    private static final String INSERT_RECYCLE =
+            "insert into sequence_id_recycle (type, stripe, stripes, range_start, range_end) values (?, ?, ?, ?, ?)";
+
+    private static final String GET_ADJACENT_RECYCLE = "select id, type, stripe, stripes, range_start, range_end"
+            + " from sequence_id_recycle where type = ? and stripes = ? and stripe = ?"
+            + " and (range_end = ? or range_start = ?) for update";
+
+    private static final String GET_ONE_RECYCLE = "select id, type, stripe, stripes, range_start, range_end"
+            + " from sequence_id_recycle where type = ? and range_end - range_start + 1 >= ?"
+            + " order by id limit 1 for update skip locked";
+
+    private static final String DELETE_RECYCLE = "delete from sequence_id_recycle where id = ?";
+
+    private static final String DELETE_RECYCLE_BY_TYPE = "delete from sequence_id_recycle where type = ?";
+
+    private static final String UPDATE_RECYCLE_START =
+            "update sequence_id_recycle set range_start = range_start + ? where id = ?";
+
     public IdSlotDao(DataSource dataSource) {
         this.dataSource = dataSource;
     }
 
+    public void setStripingEnabled(boolean stripingEnabled) {
+        this.stripingEnabled = stripingEnabled;
+    }
+
     /**
      * 获取所有Sequence id
      *
      * @return List<IdSlot>
      */
     public List<IdSlot> loadAll() throws SQLException {
-        try (Connection connection = dataSource.getConnection()) {
-            PreparedStatement preparedStatement = connection.prepareStatement(GET_ALL);
+        try (Connection connection = getConnection()) {
+            PreparedStatement preparedStatement =
+                    connection.prepareStatement(stripingEnabled ? GET_ALL_STRIPED : GET_ALL);
             ResultSet resultSet = preparedStatement.executeQuery();
             List<IdSlot> idSlotList = new ArrayList<>();
             while (resultSet.next()) {
@@ -66,11 +106,19 @@ public class IdSlotDao {
         }
     }
 
-    public IdSlot updateIdAllocAndGet(int type, int step) throws SQLException {
+    /**
+     * 将 max 增加 step 并返回更新后的 IdSlot，即分配 (max - step, max] 区间的 id
+     *
+     * @param type   Sequence id 类型
+     * @param stripe 子行编号，未开启拆分时忽略
+     * @param step   分配的 id 数量
+     * @return 更新后的 IdSlot，type 或子行不存在时返回 null
+     */
+    public IdSlot updateIdAllocAndGet(int type, int stripe, long step) throws SQLException {
         boolean autoCommit = false;
         Connection connection = null;
         try {
-            connection = dataSource.getConnection();
+            connection = getConnection();
             if (connection.getAutoCommit()) {
                 autoCommit = true;
 
@@ -79,14 +127,21 @@ public class IdSlotDao {
             }
 
             // update max
-            PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_MAX);
-            preparedStatement.setInt(1, step);
+            PreparedStatement preparedStatement =
+                    connection.prepareStatement(stripingEnabled ? UPDATE_MAX_STRIPED : UPDATE_MAX);
+            preparedStatement.setLong(1, step);
             preparedStatement.setInt(2, type);
+            if (stripingEnabled) {
+                preparedStatement.setInt(3, stripe);
+            }
             int count = preparedStatement.executeUpdate();
             if (count > 0) {
                 // query
-                preparedStatement = connection.prepareStatement(GET_ONE);
+                preparedStatement = connection.prepareStatement(stripingEnabled ? GET_ONE_STRIPED : GET_ONE);
                 preparedStatement.setInt(1, type);
+                if (stripingEnabled) {
+                    preparedStatement.setInt(2, stripe);
+                }
                 ResultSet resultSet = preparedStatement.executeQuery();
                 if (resultSet.next()) {
                     IdSlot idSlot = new IdSlot();
@@ -111,8 +166,192 @@ public class IdSlotDao {
         }
     }
 
+    /**
+     * 归还未使用的 id 区间。与表中首尾相连的区间合并为一行，避免表不断增长。
+     *
+     * @param recycles 未使用的 id 区间
+     */
+    public void recycle(List<IdRecycle> recycles) throws SQLException {
+        if (recycles.isEmpty()) {
+            return;
+        }
+
+        boolean autoCommit = false;
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            if (connection.getAutoCommit()) {
+                autoCommit = true;
+
+                // 取消自动提交
+                connection.setAutoCommit(false);
+            }
+
+            for (IdRecycle recycle : recycles) {
+                long start = recycle.getStart();
+                long end = recycle.getEnd();
+
+                // 查找并删除首尾相连的区间
+                PreparedStatement preparedStatement = connection.prepareStatement(GET_ADJACENT_RECYCLE);
+                preparedStatement.setInt(1, recycle.getType());
+                preparedStatement.setInt(2, recycle.getStripes());
+                preparedStatement.setInt(3, recycle.getStripe());
+                preparedStatement.setLong(4, start - 1);
+                preparedStatement.setLong(5, end + 1);
+                ResultSet resultSet = preparedStatement.executeQuery();
+                while (resultSet.next()) {
+                    IdRecycle adjacent = new IdRecycle();
+                    fillRecycleModel(adjacent, resultSet);
+
+                    // 加锁后读到的是最新数据，区间开头可能已被其他节点租用，需重新判断是否相连
+                    if (adjacent.getEnd() == recycle.getStart() - 1) {
+                        start = adjacent.getStart();
+                    } else if (adjacent.getStart() == recycle.getEnd() + 1) {
+                        end = adjacent.getEnd();
+                    } else {
+                        continue;
+                    }
+                    deleteRecycle(connection, adjacent.getId());
+                }
+
+                preparedStatement = connection.prepareStatement(INSERT_RECYCLE);
+                preparedStatement.setInt(1, recycle.getType());
+                preparedStatement.setInt(2, recycle.getStripe());
+                preparedStatement.setInt(3, recycle.getStripes());
+                preparedStatement.setLong(4, start);
+                preparedStatement.setLong(5, end);
+                preparedStatement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            if (connection != null) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (connection != null) {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * 从归还的 id 区间中租用 step 个 id，区间剩余部分留给其他节点。
+     * 小于 minSize 的区间不租用；剩余部分小于 minSize 时整个区间一起租用，避免产生无法使用的碎片。
+     * 使用 skip locked 跳过其他节点正在租用的行。
+     *
+     * @param type    Sequence id 类型
+     * @param step    租用的 id 数量
+     * @param minSize 可租用区间的最小长度
+     * @return 租用的 id 区间，没有可用的区间时返回 null
+     */
+    public IdRecycle leaseRecycle(int type, int step, int minSize) throws SQLException {
+        boolean autoCommit = false;
+        Connection connection = null;
+        try {
+            connection = getConnection();
+            if (connection.getAutoCommit()) {
+                autoCommit = true;
+
+                // 取消自动提交
+                connection.setAutoCommit(false);
+            }
+
+            PreparedStatement preparedStatement = connection.prepareStatement(GET_ONE_RECYCLE);
+            preparedStatement.setInt(1, type);
+            preparedStatement.setInt(2, minSize);
+            ResultSet resultSet = preparedStatement.executeQuery();
+            if (!resultSet.next()) {
+                connection.commit();
+                return null;
+            }
+
+            IdRecycle recycle = new IdRecycle();
+            fillRecycleModel(recycle, resultSet);
+            if (recycle.getEnd() - recycle.getStart() + 1 - step >= minSize) {
+                // 只租用区间开头的 step 个 id
+                preparedStatement = connection.prepareStatement(UPDATE_RECYCLE_START);
+                preparedStatement.setInt(1, step);
+                preparedStatement.setLong(2, recycle.getId());
+                preparedStatement.executeUpdate();
+                recycle.setEnd(recycle.getStart() + step - 1);
+            } else {
+                deleteRecycle(connection, recycle.getId());
+            }
+            connection.commit();
+            return recycle;
+        } catch (SQLException e) {
+            if (connection != null) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (connection != null) {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * 删除 type 所有归还的 id 区间
+     *
+     * @param type Sequence id 类型
+     */
+    public void deleteRecycle(int type) throws SQLException {
+        try (Connection connection = getConnection()) {
+            PreparedStatement preparedStatement = connection.prepareStatement(DELETE_RECYCLE_BY_TYPE);
+            preparedStatement.setInt(1, type);
+            preparedStatement.executeUpdate();
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+    }
+
+    /**
+     * 获取连接失败时统一抛出 SQLTransientConnectionException，便于调用方区分连接失败和语句执行失败
+     */
+    private Connection getConnection() throws SQLException {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLTransientConnectionException e) {
+            throw e;
+        } catch (SQLException e) {
+            throw new SQLTransientConnectionException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        }
+    }
+
+    private void deleteRecycle(Connection connection, long id) throws SQLException {
+        PreparedStatement preparedStatement = connection.prepareStatement(DELETE_RECYCLE);
+        preparedStatement.setLong(1, id);
+        preparedStatement.executeUpdate();
+    }
+
+    private void fillRecycleModel(IdRecycle recycle, ResultSet resultSet) throws SQLException {
+        recycle.setId(resultSet.getLong("id"));
+        recycle.setType(resultSet.getInt("type"));
+        recycle.setStripe(resultSet.getInt("stripe"));
+        recycle.setStripes(resultSet.getInt("stripes"));
+        recycle.setStart(resultSet.getLong("range_start"));
+        recycle.setEnd(resultSet.getLong("range_end"));
+    }
+
     private void fillModel(IdSlot idSlot, ResultSet resultSet) throws SQLException {
         idSlot.setType(resultSet.getInt("type"));
+        if (stripingEnabled) {
+            idSlot.setStripe(resultSet.getInt("stripe"));
+            idSlot.setStripes(resultSet.getInt("stripes"));
+        } else {
+            // 未开启拆分时每个 type 只有一行
+            idSlot.setStripe(0);
+            idSlot.setStripes(1);
+        }
         idSlot.setMax(resultSet.getLong("max"));
         idSlot.setStep(resultSet.getInt("step"));
         idSlot.setMaxStep(resultSet.getInt("max_step"));
@@ -25,4 +25,8 @@ public class SequenceIdException extends RuntimeException {
     public SequenceIdException(String msg) {
         super(msg);
     }
+
+    public SequenceIdException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
 }
@@ -18,13 +18,18 @@
 package com.zcn.sequence.id;
 
 import com.zcn.sequence.id.model.IdBuffer;
+import com.zcn.sequence.id.model.IdRange;
+import com.zcn.sequence.id.model.IdRecycle;
 import com.zcn.sequence.id.model.IdSlot;
 import com.zcn.sequence.id.model.Segment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,6 +41,17 @@ public class SequenceIdGenerator {
 
     private static final Logger LOG = LoggerFactory.getLogger(SequenceIdGenerator.class);
 
+    /**
+     * 当前节点的哈希值，用于选择拆分子行
+     */
+    private static final int NODE_HASH =
+            ManagementFactory.getRuntimeMXBean().getName().hashCode();
+
+    /**
+     * 租用归还区间未找到可用区间后，间隔多久再次尝试
+     */
+    private static final long RECYCLE_MISS_INTERVAL_MILLIS = 60000;
+
     private final IdSlotDao idSlotDao;
 
     private volatile boolean inited = false;
@@ -44,11 +60,71 @@ public class SequenceIdGenerator {
 
     private final Map<Integer, IdBuffer> idBuffers = new ConcurrentHashMap<>();
 
+    /**
+     * 熔断器进入 OPEN 状态所需的连续失败次数
+     */
+    private int breakerFailureThreshold = 3;
+
+    /**
+     * 熔断器第一次进入 OPEN 状态的退避时间
+     */
+    private long breakerBaseBackoffMillis = 200;
+
+    /**
+     * 熔断器的最大退避时间
+     */
+    private long breakerMaxBackoffMillis = 30000;
+
+    private CircuitBreakerListener breakerListener;
+
+    /**
+     * 是否归还未使用的 id 区间，并在分配时优先租用其他节点归还的区间。需要 sequence_id_recycle 表
+     */
+    private boolean recycleEnabled = false;
+
+    /**
+     * 数据源级别的熔断器
+     */
+    private CircuitBreaker dataSourceBreaker;
+
+    /**
+     * type 级别的熔断器
+     */
+    private final Map<Integer, CircuitBreaker> typeBreakers = new ConcurrentHashMap<>();
+
     public SequenceIdGenerator(DataSource dataSource) {
         this.idSlotDao = new IdSlotDao(dataSource);
     }
 
+    public void setBreakerFailureThreshold(int breakerFailureThreshold) {
+        this.breakerFailureThreshold = breakerFailureThreshold;
+    }
+
+    public void setBreakerBaseBackoffMillis(long breakerBaseBackoffMillis) {
+        this.breakerBaseBackoffMillis = breakerBaseBackoffMillis;
+    }
+
+    public void setBreakerMaxBackoffMillis(long breakerMaxBackoffMillis) {
+        this.breakerMaxBackoffMillis = breakerMaxBackoffMillis;
+    }
+
+    public void setBreakerListener(CircuitBreakerListener breakerListener) {
+        this.breakerListener = breakerListener;
+    }
+
+    /**
+     * 开启热点行拆分，需要 sequence_id 表的 stripe、stripes 列。未开启时每个 type 只使用一行
+     */
+    public void setStripingEnabled(boolean stripingEnabled) {
+        idSlotDao.setStripingEnabled(stripingEnabled);
+    }
+
+    public void setRecycleEnabled(boolean recycleEnabled) {
+        this.recycleEnabled = recycleEnabled;
+    }
+
     public void init() {
+        dataSourceBreaker = newCircuitBreaker("datasource");
         updateIdBuffers();
         startUpdateIdBufferInterval();
         fillSegmentExecutor = new ThreadPoolExecutor(
@@ -76,28 +152,56 @@ public class SequenceIdGenerator {
 
     private void updateIdBuffers() {
         try {
-            List<IdSlot> idSlots = idSlotDao.loadAll();
+            List<IdSlot> idSlots = callWithBreakers(idSlotDao::loadAll, null);
             if (idSlots == null || idSlots.isEmpty()) {
                 return;
             }
 
+            // 同一 type 可能拆分为多行，以编号最小的子行作为配置
+            Map<Integer, IdSlot> slotOfType = new HashMap<>();
+            for (IdSlot slot : idSlots) {
+                if (slot.getStripe() < 0 || slot.getStripe() >= slot.getStripes()) {
+                    LOG.error("Invalid stripe, it must be in [0, stripes). SequenceId Type: " + slot.getType()
+                            + ", stripe: " + slot.getStripe() + ", stripes: " + slot.getStripes());
+                    continue;
+                }
+
+                IdSlot prev = slotOfType.get(slot.getType());
+                if (prev == null || slot.getStripe() < prev.getStripe()) {
+                    slotOfType.put(slot.getType(), slot);
+                }
+            }
+
             Set<Integer> cached = new HashSet<>(idBuffers.keySet());
             List<IdSlot> newIdSlots = new ArrayList<>();
-            for (IdSlot slot : idSlots) {
+            for (IdSlot slot : slotOfType.values()) {
                 if (!cached.contains(slot.getType())) {
                     newIdSlots.add(slot);
                 } else {
                     cached.remove(slot.getType());
+
+                    IdBuffer idBuffer = idBuffers.get(slot.getType());
+                    int stripes = slot.getStripes();
+                    if (idBuffer != null && idBuffer.getStripes() != stripes) {
+                        idBuffer.setStripes(stripes);
+                        LOG.info("Update IdBuffer stripes. SequenceId Type: " + slot.getType() + ", stripes: "
+                                + stripes);
+                    }
                 }
             }
 
             for (Integer t : cached) {
                 idBuffers.remove(t);
+                typeBreakers.remove(t);
+                if (recycleEnabled) {
+                    // type 已被删除，重新创建后 max 可能变小，归还的区间不能再使用
+                    deleteRecycle(t);
+                }
                 LOG.info("Remove unused IdBuffer. SequenceId Type:" + t);
             }
 
             for (IdSlot idSlot : newIdSlots) {
-                IdBuffer idBuffer = new IdBuffer(idSlot);
+                IdBuffer idBuffer = new IdBuffer(idSlot, idSlot.getStripes());
                 idBuffers.put(idSlot.getType(), idBuffer);
                 LOG.info("Add IdBuffer. SequenceId Type :" + idSlot.getType());
             }
@@ -117,6 +221,11 @@ public class SequenceIdGenerator {
         }
 
         if (!idBuffer.isReady()) {
+            if (!isRefillPermitted(type)) {
+                throw new SequenceIdException(
+                        "Circuit breaker is open, IdBuffer is not ready. SequenceId Type: " + type);
+            }
+
             synchronized (idBuffer) {
                 if (!idBuffer.isReady()) {
                     try {
@@ -132,39 +241,263 @@ public class SequenceIdGenerator {
         return getValue(idBuffer);
     }
 
+    /**
+     * 直接从数据库一次性预留 count 个连续的 id，用于数据迁移等批量场景。
+     * <p>
+     * 不经过该 type 的 IdBuffer，不会影响在线流量的号段及自适应步长；也不经过熔断器，预留失败不会导致在线流量熔断。
+     *
+     * @param type  Sequence id 类型
+     * @param count 预留的 id 数量
+     * @return IdRange
+     */
+    public IdRange reserve(int type, long count) throws SequenceIdException {
+        if (!inited) {
+            throw new SequenceIdException("SequenceIdGenerator was not initialized.");
+        }
+
+        if (count <= 0) {
+            throw new SequenceIdException("Reserve count must be positive. Count: " + count);
+        }
+
+        IdBuffer idBuffer = idBuffers.get(type);
+        if (idBuffer == null) {
+            throw new SequenceIdException("Unknown SequenceId type :" + type);
+        }
+
+        // 按加载时的 max 估算，max + count 及 id = value * stripes + stripe 会溢出时不访问数据库
+        int stripes = idBuffer.getStripes();
+        if (count > maxValue(stripes) - Math.max(idBuffer.getLoadedMax(), 0)) {
+            throw new SequenceIdException("Reserve count is too large, SequenceId would overflow. SequenceId Type: "
+                    + type + ", count: " + count);
+        }
+
+        IdSlot idSlot;
+        try {
+            idSlot = allocateFromStripes(type, stripes, count);
+        } catch (SQLException e) {
+            throw new SequenceIdException("Failed to reserve SequenceId range. SequenceId Type: " + type, e);
+        }
+
+        if (idSlot == null) {
+            throw new SequenceIdException(
+                    "No SequenceId Type, Please check table sequence_id. SequenceId Type: " + type);
+        }
+
+        // 加载之后 max 或 stripes 可能已增加，以分配事务中读到的值再次检查
+        if (idSlot.getMax() > maxValue(idSlot.getStripes())) {
+            throw new SequenceIdException(
+                    "SequenceId overflow. SequenceId Type: " + type + ", max: " + idSlot.getMax());
+        }
+        return new IdRange(idSlot.getMax() - count + 1, idSlot.getMax(), idSlot.getStripes(), idSlot.getStripe());
+    }
+
+    /**
+     * value * stripes + stripe 不溢出时 value 的最大值
+     */
+    private static long maxValue(int stripes) {
+        return (Long.MAX_VALUE - (stripes - 1)) / stripes;
+    }
+
     private void fillSegment(int type, IdBuffer idBuffer, Segment segment) throws SequenceIdException, SQLException {
         int step = idBuffer.getNextStep();
-        IdSlot idSlot = idSlotDao.updateIdAllocAndGet(type, step);
+        int stripes = idBuffer.getStripes();
+        if (recycleEnabled && System.currentTimeMillis() >= idBuffer.getNextRecycleLeaseMillis()) {
+            // 优先租用其他节点归还的区间，小于初始步长的碎片不租用
+            int minSize = Math.min(step, idBuffer.getInitStep());
+            IdRecycle recycle = null;
+            try {
+                recycle = idSlotDao.leaseRecycle(type, step, minSize);
+            } catch (SQLException e) {
+                // 租用只是优化，失败时不计入熔断器，直接从 sequence_id 分配
+                LOG.warn("Failed to lease recycled SequenceId range. SequenceId Type: " + type, e);
+            }
+            if (recycle != null) {
+                int size = (int) (recycle.getEnd() - recycle.getStart() + 1);
+                segment.refresh(recycle.getEnd(), size, recycle.getStripes(), recycle.getStripe());
+                return;
+            }
+
+            // 没有可用区间或租用失败时一段时间内不再查询，避免每次填充都多一次数据库往返
+            idBuffer.setNextRecycleLeaseMillis(System.currentTimeMillis() + RECYCLE_MISS_INTERVAL_MILLIS);
+        }
+
+        IdSlot idSlot = allocate(type, stripes, step);
         if (idSlot == null) {
             throw new SequenceIdException(
                     "No SequenceId Type, Please check table sequence_id. SequenceId Type: " + type);
         }
-        segment.refresh(idSlot.getMax(), step);
+        segment.refresh(idSlot.getMax(), step, idSlot.getStripes(), idSlot.getStripe());
     }
 
-    private void fillNextSegmentAsync(IdBuffer idBuffer) {
-        fillSegmentExecutor.execute(() -> {
-            boolean ok = false;
-            try {
-                fillSegment(idBuffer.getType(), idBuffer, idBuffer.getNextSegment());
-                ok = true;
-            } catch (Exception e) {
-                LOG.error("Failed to refresh sequenceId segment.", e);
-            } finally {
-                if (ok) {
-                    idBuffer.getWriteLock().lock();
-                    idBuffer.setNextReady(true);
-                    idBuffer.isFillingNext().set(false);
-                    idBuffer.getWriteLock().unlock();
+    /**
+     * 经过数据源及 type 的熔断器分配 id，熔断器打开时直接失败。
+     */
+    private IdSlot allocate(int type, int stripes, long step) throws SequenceIdException, SQLException {
+        return callWithBreaker(type, () -> allocateFromStripes(type, stripes, step));
+    }
+
+    private <T> T callWithBreaker(int type, DaoCall<T> call) throws SequenceIdException, SQLException {
+        return callWithBreakers(call, getTypeBreaker(type));
+    }
+
+    /**
+     * 数据源及 type 的熔断器都放行时才调用 IdSlotDao。先检查再申请，避免某个熔断器拒绝时白白占用其他熔断器的探测机会。
+     * <p>
+     * 每次失败只计入一个熔断器：连接失败计入数据源熔断器，语句执行失败计入 type 熔断器，
+     * 避免单个 type 的行锁超时等问题打开数据源熔断器，影响所有 type。
+     *
+     * @param typeBreaker type 级别的熔断器，不针对某个 type 的调用传 null
+     */
+    private <T> T callWithBreakers(DaoCall<T> call, CircuitBreaker typeBreaker)
+            throws SequenceIdException, SQLException {
+        CircuitBreaker[] breakers = typeBreaker == null
+                ? new CircuitBreaker[] {dataSourceBreaker}
+                : new CircuitBreaker[] {dataSourceBreaker, typeBreaker};
+        for (CircuitBreaker breaker : breakers) {
+            if (!breaker.isCallPermitted()) {
+                throw new SequenceIdException("Circuit breaker " + breaker.getName() + " is open, reject to call.");
+            }
+        }
+
+        for (int i = 0; i < breakers.length; i++) {
+            if (!breakers[i].tryAcquire()) {
+                for (int j = 0; j < i; j++) {
+                    breakers[j].release();
+                }
+                throw new SequenceIdException("Circuit breaker " + breakers[i].getName() + " is open, reject to call.");
+            }
+        }
+
+        T result;
+        try {
+            result = call.call();
+        } catch (SQLException e) {
+            CircuitBreaker failed = typeBreaker == null || isConnectionFailure(e) ? dataSourceBreaker : typeBreaker;
+            for (CircuitBreaker breaker : breakers) {
+                if (breaker == failed) {
+                    breaker.onFailure();
                 } else {
-                    idBuffer.isFillingNext().set(false);
+                    breaker.release();
                 }
             }
-        });
+            throw e;
+        } catch (RuntimeException e) {
+            for (CircuitBreaker breaker : breakers) {
+                breaker.release();
+            }
+            throw e;
+        }
+
+        for (CircuitBreaker breaker : breakers) {
+            breaker.onSuccess();
+        }
+        return result;
+    }
+
+    /**
+     * 是否为连接级别的失败，SQLState 以 08 开头表示连接异常
+     */
+    static boolean isConnectionFailure(SQLException e) {
+        if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException) {
+            return true;
+        }
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    /**
+     * 从 type 的子行中分配 step 个 id。优先使用按节点哈希选出的子行，失败时依次尝试其余子行，
+     * 避免所有节点竞争同一行的行锁。
+     * <p>
+     * stripes 只用于选择子行，id 的间隔以分配事务中读到的 IdSlot.stripes 为准，不受本地缓存过期的影响。
+     */
+    private IdSlot allocateFromStripes(int type, int stripes, long step) throws SQLException {
+        SQLException lastException = null;
+        for (int i = 0; i < stripes; i++) {
+            int stripe = Math.floorMod(NODE_HASH + i, stripes);
+            try {
+                IdSlot idSlot = idSlotDao.updateIdAllocAndGet(type, stripe, step);
+                if (idSlot == null) {
+                    continue;
+                }
+
+                // 加载时已过滤非法的子行，这里只会在加载之后修改了 stripes 时出现，跳过该子行
+                if (idSlot.getStripe() < 0 || idSlot.getStripe() >= idSlot.getStripes()) {
+                    LOG.error("Invalid stripe, it must be in [0, stripes). SequenceId Type: " + type + ", stripe: "
+                            + idSlot.getStripe() + ", stripes: " + idSlot.getStripes());
+                    continue;
+                }
+                return idSlot;
+            } catch (SQLException e) {
+                lastException = e;
+                LOG.warn("Failed to allocate SequenceId from stripe " + stripe + ". SequenceId Type: " + type, e);
+            }
+        }
+
+        if (lastException != null) {
+            throw lastException;
+        }
+        return null;
+    }
+
+    private CircuitBreaker newCircuitBreaker(String name) {
+        return new CircuitBreaker(
+                name, breakerFailureThreshold, breakerBaseBackoffMillis, breakerMaxBackoffMillis, breakerListener);
+    }
+
+    private CircuitBreaker getTypeBreaker(int type) {
+        // 热点路径上先无锁读取，只有首次创建时才进入 computeIfAbsent 的加锁逻辑
+        CircuitBreaker breaker = typeBreakers.get(type);
+        if (breaker != null) {
+            return breaker;
+        }
+        return typeBreakers.computeIfAbsent(type, t -> newCircuitBreaker("type-" + t));
     }
 
+    private boolean isRefillPermitted(int type) {
+        return dataSourceBreaker.isCallPermitted() && getTypeBreaker(type).isCallPermitted();
+    }
+
+    private void fillNextSegmentAsync(IdBuffer idBuffer) {
+        try {
+            fillSegmentExecutor.execute(() -> fillNextSegment(idBuffer));
+        } catch (RejectedExecutionException e) {
+            // destroy() 已关闭线程池
+            idBuffer.isFillingNext().set(false);
+        }
+    }
+
+    private void fillNextSegment(IdBuffer idBuffer) {
+        boolean ok = false;
+        try {
+            fillSegment(idBuffer.getType(), idBuffer, idBuffer.getNextSegment());
+            ok = true;
+        } catch (Exception e) {
+            LOG.error("Failed to refresh sequenceId segment.", e);
+        } finally {
+            if (ok) {
+                idBuffer.getWriteLock().lock();
+                idBuffer.setNextReady(true);
+                idBuffer.isFillingNext().set(false);
+                idBuffer.getWriteLock().unlock();
+            } else {
+                idBuffer.isFillingNext().set(false);
+            }
+        }
+    }
+
+    /**
+     * 只有抢到填充权的线程才检查熔断器，熔断器打开时归还填充权。
+     */
     private boolean shouldFillNextSegment(IdBuffer idBuffer) {
-        return !idBuffer.isNextReady() && idBuffer.isFillingNext().compareAndSet(false, true);
+        if (idBuffer.isNextReady() || !idBuffer.isFillingNext().compareAndSet(false, true)) {
+            return false;
+        }
+        if (!isRefillPermitted(idBuffer.getType())) {
+            idBuffer.isFillingNext().set(false);
+            return false;
+        }
+        return true;
     }
 
     private long getValue(IdBuffer idBuffer) {
@@ -184,7 +517,8 @@ public class SequenceIdGenerator {
                 idBuffer.getReadLock().unlock();
             }
 
-            if (!idBuffer.isNextReady() && shouldFillNextSegment(idBuffer)) {
+            // 熔断器打开时不再触发填充，没有正在进行的填充时 waitMoment 立即返回，两个号段都用完则快速失败
+            if (shouldFillNextSegment(idBuffer)) {
                 fillNextSegmentAsync(idBuffer);
             }
 
@@ -230,6 +564,81 @@ public class SequenceIdGenerator {
     public void destroy() {
         if (inited) {
             fillSegmentExecutor.shutdown();
+
+            if (recycleEnabled) {
+                try {
+                    // 等待正在填充的Segment完成，使其也能被归还
+                    fillSegmentExecutor.awaitTermination(3, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                List<IdRecycle> recycles = new ArrayList<>();
+                for (IdBuffer idBuffer : idBuffers.values()) {
+                    recycles.addAll(drainIdBuffer(idBuffer));
+                }
+                recycle(recycles);
+            }
         }
     }
+
+    /**
+     * 取出 IdBuffer 中两个Segment未使用的区间，之后该 IdBuffer 不再分配这些 id
+     */
+    private List<IdRecycle> drainIdBuffer(IdBuffer idBuffer) {
+        List<IdRecycle> recycles = new ArrayList<>();
+        try {
+            idBuffer.getWriteLock().lock();
+            addRecycle(recycles, idBuffer.getType(), idBuffer.getCurrentSegment());
+            if (idBuffer.isNextReady()) {
+                addRecycle(recycles, idBuffer.getType(), idBuffer.getNextSegment());
+                idBuffer.setNextReady(false);
+            }
+        } finally {
+            idBuffer.getWriteLock().unlock();
+        }
+        return recycles;
+    }
+
+    private void addRecycle(List<IdRecycle> recycles, int type, Segment segment) {
+        long used = segment.drain();
+        if (used >= segment.getMax()) {
+            return;
+        }
+
+        IdRecycle recycle = new IdRecycle();
+        recycle.setType(type);
+        recycle.setStripe(segment.getOffset());
+        recycle.setStripes(segment.getStride());
+        recycle.setStart(used + 1);
+        recycle.setEnd(segment.getMax());
+        recycles.add(recycle);
+    }
+
+    private void deleteRecycle(int type) {
+        try {
+            idSlotDao.deleteRecycle(type);
+        } catch (Exception e) {
+            LOG.error("Failed to delete recycled SequenceId ranges. SequenceId Type: " + type, e);
+        }
+    }
+
+    private void recycle(List<IdRecycle> recycles) {
+        if (recycles.isEmpty()) {
+            return;
+        }
+
+        List<IdRecycle> merged = IdRecycle.merge(recycles);
+        try {
+            idSlotDao.recycle(merged);
+            LOG.info("Recycle unused SequenceId ranges. Count: " + merged.size());
+        } catch (Exception e) {
+            LOG.error("Failed to recycle unused SequenceId ranges.", e);
+        }
+    }
+
+    private interface DaoCall<T> {
+
+        T call() throws SQLException;
+    }
 }
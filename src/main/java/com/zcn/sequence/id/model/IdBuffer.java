@@ -62,13 +62,28 @@ public class IdBuffer {
      */
     private int step;
 
+    /**
+     * 下次允许租用归还区间的时间，上次租用未找到可用区间时推迟
+     */
+    private volatile long nextRecycleLeaseMillis = 0;
+
+    /**
+     * 该 type 在 sequence_id 中拆分的子行数量，仅用于选择子行，id 的间隔以分配时读到的值为准
+     */
+    private volatile int stripes;
+
     private final IdSlot idSlot;
 
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public IdBuffer(IdSlot idSlot) {
+        this(idSlot, 1);
+    }
+
+    public IdBuffer(IdSlot idSlot, int stripes) {
         this.idSlot = idSlot;
         this.step = idSlot.getStep();
+        this.stripes = stripes;
     }
 
     public Segment getCurrentSegment() {
@@ -88,6 +103,33 @@ public class IdBuffer {
         return idSlot.getType();
     }
 
+    public int getInitStep() {
+        return idSlot.getStep();
+    }
+
+    /**
+     * 加载 IdBuffer 时的 max，max 只增不减，可作为当前 max 的下界
+     */
+    public long getLoadedMax() {
+        return idSlot.getMax();
+    }
+
+    public long getNextRecycleLeaseMillis() {
+        return nextRecycleLeaseMillis;
+    }
+
+    public void setNextRecycleLeaseMillis(long nextRecycleLeaseMillis) {
+        this.nextRecycleLeaseMillis = nextRecycleLeaseMillis;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
     public boolean isReady() {
         return ready;
     }
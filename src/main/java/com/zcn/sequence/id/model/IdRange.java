@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id.model;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * 一段连续预留的 Sequence id，用于批量导入等一次性需要大量 id 的场景。
+ * <p>
+ * 以游标方式逐个返回 id，{@link #nextLong()} 及 forEachRemaining(LongConsumer) 不产生装箱对象。非线程安全。
+ * <p>
+ * 拆分为多行的 type，区间内的 id 以子行数量为间隔：value * stride + offset。
+ *
+ * @author zicung
+ */
+public class IdRange implements PrimitiveIterator.OfLong {
+
+    /**
+     * 预留的第一个值
+     */
+    private final long start;
+
+    /**
+     * 预留的最后一个值
+     */
+    private final long end;
+
+    /**
+     * 子行数量
+     */
+    private final int stride;
+
+    /**
+     * 子行编号
+     */
+    private final int offset;
+
+    /**
+     * 下一个返回的值
+     */
+    private long cursor;
+
+    public IdRange(long start, long end) {
+        this(start, end, 1, 0);
+    }
+
+    public IdRange(long start, long end, int stride, int offset) {
+        this.start = start;
+        this.end = end;
+        this.stride = stride;
+        this.offset = offset;
+        this.cursor = start;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return cursor <= end;
+    }
+
+    @Override
+    public long nextLong() {
+        if (cursor > end) {
+            throw new NoSuchElementException("IdRange exhausted. End: " + end);
+        }
+        return cursor++ * stride + offset;
+    }
+
+    public long getStart() {
+        return start * stride + offset;
+    }
+
+    public long getEnd() {
+        return end * stride + offset;
+    }
+
+    public long size() {
+        return end - start + 1;
+    }
+
+    public long getRemaining() {
+        return end - cursor + 1;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 未使用完而归还的一段 Sequence id，对应 sequence_id_recycle 表中的一行。
+ * <p>
+ * start 与 end 为子行内的值，实际的 id 为 value * stripes + stripe。
+ *
+ * @author zicung
+ */
+public class IdRecycle {
+
+    private long id;
+
+    private int type;
+
+    private int stripe;
+
+    /**
+     * 归还时 type 的子行数量，即该区间内 id 的间隔
+     */
+    private int stripes;
+
+    private long start;
+
+    private long end;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    public int getStripe() {
+        return stripe;
+    }
+
+    public void setStripe(int stripe) {
+        this.stripe = stripe;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public void setStart(long start) {
+        this.start = start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public void setEnd(long end) {
+        this.end = end;
+    }
+
+    /**
+     * 合并同一子行中首尾相连或重叠的区间，减少 sequence_id_recycle 的行数
+     */
+    public static List<IdRecycle> merge(List<IdRecycle> recycles) {
+        List<IdRecycle> sorted = new ArrayList<>(recycles);
+        sorted.sort(Comparator.comparingInt(IdRecycle::getType)
+                .thenComparingInt(IdRecycle::getStripes)
+                .thenComparingInt(IdRecycle::getStripe)
+                .thenComparingLong(IdRecycle::getStart));
+
+        List<IdRecycle> merged = new ArrayList<>();
+        IdRecycle prev = null;
+        for (IdRecycle recycle : sorted) {
+            if (prev != null
+                    && prev.getType() == recycle.getType()
+                    && prev.getStripes() == recycle.getStripes()
+                    && prev.getStripe() == recycle.getStripe()
+                    && prev.getEnd() + 1 >= recycle.getStart()) {
+                prev.setEnd(Math.max(prev.getEnd(), recycle.getEnd()));
+            } else {
+                merged.add(recycle);
+                prev = recycle;
+            }
+        }
+        return merged;
+    }
+}
@@ -26,6 +26,16 @@ public class IdSlot {
 
     private int type;
 
+    /**
+     * 同一 type 拆分为多行时的子行编号，从0开始
+     */
+    private int stripe;
+
+    /**
+     * 该 type 拆分的子行数量，同一 type 的各行应一致
+     */
+    private int stripes;
+
     private long max;
 
     private int step;
@@ -44,6 +54,22 @@ public class IdSlot {
         this.type = type;
     }
 
+    public int getStripe() {
+        return stripe;
+    }
+
+    public void setStripe(int stripe) {
+        this.stripe = stripe;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
     public long getMax() {
         return max;
     }
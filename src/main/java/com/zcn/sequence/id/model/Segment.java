@@ -39,15 +39,53 @@ public class Segment {
      */
     private volatile int step = 0;
 
+    /**
+     * 子行数量，返回的ID为 value * stride + offset
+     */
+    private volatile int stride = 1;
+
+    /**
+     * 子行编号
+     */
+    private volatile int offset = 0;
+
     public void refresh(long max, int step) {
+        refresh(max, step, 1, 0);
+    }
+
+    public void refresh(long max, int step, int stride, int offset) {
         this.value.set(max - step);
         this.step = step;
+        this.stride = stride;
+        this.offset = offset;
         this.max = max;
     }
 
     public Long next() {
         long val = value.incrementAndGet();
-        return val <= max ? val : null;
+        return val <= max ? val * stride + offset : null;
+    }
+
+    /**
+     * 将当前Segment标记为已用完，之后的 next() 都返回 null
+     *
+     * @return 已使用的最大值，未使用的区间为 (返回值, max]
+     */
+    public long drain() {
+        long used = value.getAndSet(max);
+        return Math.min(used, max);
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    public int getOffset() {
+        return offset;
     }
 
     public long getRemaining() {
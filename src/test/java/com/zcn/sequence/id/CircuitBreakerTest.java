@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author zicung
+ */
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    private final List<String> events = new ArrayList<>();
+
+    private CircuitBreaker newBreaker(long baseBackoffMillis, long maxBackoffMillis) {
+        return new CircuitBreaker(
+                "test",
+                3,
+                baseBackoffMillis,
+                maxBackoffMillis,
+                (name, from, to) -> events.add(from + "->" + to),
+                now::get);
+    }
+
+    @Test
+    public void testOpenAfterThreshold() {
+        CircuitBreaker breaker = newBreaker(100, 1000);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isCallPermitted());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(1, events.size());
+        assertEquals("CLOSED->OPEN", events.get(0));
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        CircuitBreaker breaker = newBreaker(100, 1000);
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenProbe() {
+        CircuitBreaker breaker = newBreaker(100, 1000);
+        open(breaker);
+
+        now.addAndGet(100);
+        assertTrue(breaker.isCallPermitted());
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        // 每个退避周期只放行一次探测
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertEquals("CLOSED->OPEN", events.get(0));
+        assertEquals("OPEN->HALF_OPEN", events.get(1));
+        assertEquals("HALF_OPEN->CLOSED", events.get(2));
+    }
+
+    @Test
+    public void testReleaseProbe() {
+        CircuitBreaker breaker = newBreaker(100, 1000);
+        open(breaker);
+
+        now.addAndGet(100);
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.release();
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testJitteredExponentialBackoff() {
+        for (int round = 0; round < 100; round++) {
+            CircuitBreaker breaker = newBreaker(100, 300);
+            open(breaker);
+
+            // 第一次退避时间在 [50, 100]
+            assertBackoff(breaker, 50, 100);
+
+            // 探测失败后退避时间翻倍，在 [100, 200]
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            assertBackoff(breaker, 100, 200);
+
+            // 不超过最大退避时间，在 [150, 300]
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+            assertBackoff(breaker, 150, 300);
+        }
+    }
+
+    private void open(CircuitBreaker breaker) {
+        for (int i = 0; i < 3; i++) {
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    /**
+     * 检查退避时间在 [min, max] 之间，返回时时钟停在退避结束的时刻
+     */
+    private void assertBackoff(CircuitBreaker breaker, long min, long max) {
+        long openAt = now.get();
+        now.set(openAt + min - 1);
+        assertFalse(breaker.isCallPermitted());
+        now.set(openAt + max);
+        assertTrue(breaker.isCallPermitted());
+    }
+}
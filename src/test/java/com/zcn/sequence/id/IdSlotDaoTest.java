@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zcn.sequence.id.model.IdSlot;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author zicung
+ */
+public class IdSlotDaoTest {
+
+    private final StubDataSource dataSource = new StubDataSource();
+
+    @Test
+    public void testUpdateWithoutStriping() throws SQLException {
+        dataSource.row.put("max", 100L);
+
+        IdSlotDao dao = new IdSlotDao(dataSource.get());
+        IdSlot idSlot = dao.updateIdAllocAndGet(1, 0, 10);
+
+        assertEquals(100L, idSlot.getMax());
+        assertEquals(0, idSlot.getStripe());
+        assertEquals(1, idSlot.getStripes());
+        assertEquals(2, dataSource.sqls.size());
+        for (String sql : dataSource.sqls) {
+            assertFalse(sql.contains("stripe"), sql);
+        }
+    }
+
+    @Test
+    public void testUpdateWithStriping() throws SQLException {
+        dataSource.row.put("stripe", 2);
+        dataSource.row.put("stripes", 4);
+        dataSource.row.put("max", 100L);
+
+        IdSlotDao dao = new IdSlotDao(dataSource.get());
+        dao.setStripingEnabled(true);
+        IdSlot idSlot = dao.updateIdAllocAndGet(1, 2, 10);
+
+        assertEquals(2, idSlot.getStripe());
+        assertEquals(4, idSlot.getStripes());
+        assertEquals(2, dataSource.sqls.size());
+        for (String sql : dataSource.sqls) {
+            assertTrue(sql.contains("stripe = ?"), sql);
+        }
+    }
+
+    @Test
+    public void testGetConnectionFailure() {
+        dataSource.connectionFailure = new SQLException("Pool exhausted");
+
+        IdSlotDao dao = new IdSlotDao(dataSource.get());
+        assertThrows(SQLTransientConnectionException.class, () -> dao.updateIdAllocAndGet(1, 0, 10));
+    }
+}
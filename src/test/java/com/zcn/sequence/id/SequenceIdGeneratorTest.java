@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zcn.sequence.id.model.IdRange;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author zicung
+ */
+public class SequenceIdGeneratorTest {
+
+    private final StubDataSource dataSource = new StubDataSource();
+
+    private final List<String> openedBreakers = new CopyOnWriteArrayList<>();
+
+    private SequenceIdGenerator generator;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource.row.put("type", 1);
+        dataSource.row.put("step", 10);
+        dataSource.row.put("max_step", 100);
+        dataSource.row.put("max", 10L);
+
+        generator = new SequenceIdGenerator(dataSource.get());
+        generator.setBreakerFailureThreshold(1);
+        generator.setBreakerListener((name, from, to) -> {
+            if (to == CircuitBreaker.State.OPEN) {
+                openedBreakers.add(name);
+            }
+        });
+        generator.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        generator.destroy();
+    }
+
+    @Test
+    public void testConnectionFailureOpensDataSourceBreaker() {
+        dataSource.connectionFailure = new SQLException("Pool exhausted");
+
+        assertThrows(SequenceIdException.class, () -> generator.generate(1));
+        assertEquals(1, openedBreakers.size());
+        assertEquals("datasource", openedBreakers.get(0));
+    }
+
+    @Test
+    public void testStatementFailureOpensTypeBreaker() {
+        dataSource.statementFailure = new SQLException("Lock wait timeout exceeded", "HY000");
+
+        assertThrows(SequenceIdException.class, () -> generator.generate(1));
+        assertEquals(1, openedBreakers.size());
+        assertEquals("type-1", openedBreakers.get(0));
+    }
+
+    @Test
+    public void testReserve() {
+        IdRange range = generator.reserve(1, 5);
+
+        assertEquals(6, range.getStart());
+        assertEquals(10, range.getEnd());
+    }
+
+    @Test
+    public void testReserveRejectsOverflow() {
+        int executed = dataSource.sqls.size();
+
+        assertThrows(SequenceIdException.class, () -> generator.reserve(1, Long.MAX_VALUE - 5));
+        assertEquals(executed, dataSource.sqls.size());
+    }
+
+    @Test
+    public void testReserveFailureNotCountedByBreakers() {
+        dataSource.statementFailure = new SQLException("Lock wait timeout exceeded", "HY000");
+        assertThrows(SequenceIdException.class, () -> generator.reserve(1, 5));
+        assertTrue(openedBreakers.isEmpty());
+
+        dataSource.statementFailure = null;
+        assertEquals(1, generator.generate(1));
+    }
+
+    @Test
+    public void testIsConnectionFailure() {
+        assertTrue(SequenceIdGenerator.isConnectionFailure(new SQLTransientConnectionException()));
+        assertTrue(SequenceIdGenerator.isConnectionFailure(new SQLException("Communications link failure", "08S01")));
+        assertFalse(SequenceIdGenerator.isConnectionFailure(new SQLException("Deadlock found", "40001")));
+        assertFalse(SequenceIdGenerator.isConnectionFailure(new SQLException("Unknown")));
+    }
+}
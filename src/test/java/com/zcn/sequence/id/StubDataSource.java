@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.sql.DataSource;
+
+/**
+ * 基于动态代理的 DataSource，记录执行的 SQL，查询时返回 row 中的一行数据。
+ *
+ * @author zicung
+ */
+class StubDataSource {
+
+    final List<String> sqls = new CopyOnWriteArrayList<>();
+
+    final Map<String, Object> row = new ConcurrentHashMap<>();
+
+    /**
+     * 不为 null 时获取连接抛出该异常
+     */
+    volatile SQLException connectionFailure;
+
+    /**
+     * 不为 null 时执行语句抛出该异常
+     */
+    volatile SQLException statementFailure;
+
+    DataSource get() {
+        return proxy(DataSource.class, (method, args) -> {
+            if (!"getConnection".equals(method)) {
+                return null;
+            }
+            if (connectionFailure != null) {
+                throw connectionFailure;
+            }
+            return connection();
+        });
+    }
+
+    private Connection connection() {
+        return proxy(Connection.class, (method, args) -> {
+            switch (method) {
+                case "prepareStatement":
+                    sqls.add((String) args[0]);
+                    return statement();
+                case "getAutoCommit":
+                    return true;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private PreparedStatement statement() {
+        return proxy(PreparedStatement.class, (method, args) -> {
+            if (statementFailure != null && method.startsWith("execute")) {
+                throw statementFailure;
+            }
+            switch (method) {
+                case "executeUpdate":
+                    return 1;
+                case "executeQuery":
+                    return resultSet();
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private ResultSet resultSet() {
+        boolean[] consumed = {false};
+        return proxy(ResultSet.class, (method, args) -> {
+            switch (method) {
+                case "next":
+                    boolean hasNext = !consumed[0];
+                    consumed[0] = true;
+                    return hasNext;
+                case "getInt":
+                    return column((String) args[0], 0);
+                case "getLong":
+                    return column((String) args[0], 0L);
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private Object column(String name, Object defaultValue) throws SQLException {
+        if (row.containsKey(name)) {
+            return row.get(name);
+        }
+        if (name.startsWith("stripe")) {
+            // 模拟未增加 stripe、stripes 列的旧表
+            throw new SQLException("Unknown column " + name);
+        }
+        return defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (p, method, args) -> {
+            try {
+                return handler.invoke(method.getName(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private interface Handler {
+
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+}
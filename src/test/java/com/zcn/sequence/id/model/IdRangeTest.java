@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author zicung
+ */
+public class IdRangeTest {
+
+    @Test
+    public void testIterate() {
+        IdRange range = new IdRange(11, 13);
+        assertEquals(11, range.getStart());
+        assertEquals(13, range.getEnd());
+        assertEquals(3, range.size());
+
+        assertTrue(range.hasNext());
+        assertEquals(11, range.nextLong());
+        assertEquals(2, range.getRemaining());
+        assertEquals(12, range.nextLong());
+        assertEquals(13, range.nextLong());
+        assertFalse(range.hasNext());
+        assertEquals(0, range.getRemaining());
+        assertThrows(NoSuchElementException.class, range::nextLong);
+    }
+
+    @Test
+    public void testForEachRemaining() {
+        IdRange range = new IdRange(1, 100);
+        range.nextLong();
+
+        AtomicLong count = new AtomicLong();
+        AtomicLong last = new AtomicLong();
+        range.forEachRemaining((long id) -> {
+            count.incrementAndGet();
+            last.set(id);
+        });
+
+        assertEquals(99, count.get());
+        assertEquals(100, last.get());
+        assertFalse(range.hasNext());
+    }
+
+    @Test
+    public void testSingleId() {
+        IdRange range = new IdRange(5, 5);
+        assertEquals(1, range.size());
+        assertEquals(5, range.nextLong());
+        assertFalse(range.hasNext());
+    }
+
+    @Test
+    public void testStride() {
+        // 子行 2，共 4 行，本地值 [3, 5]
+        IdRange range = new IdRange(3, 5, 4, 2);
+        assertEquals(14, range.getStart());
+        assertEquals(22, range.getEnd());
+        assertEquals(3, range.size());
+
+        assertEquals(14, range.nextLong());
+        assertEquals(18, range.nextLong());
+        assertEquals(22, range.nextLong());
+        assertFalse(range.hasNext());
+    }
+}
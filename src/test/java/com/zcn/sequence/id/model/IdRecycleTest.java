@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author zicung
+ */
+public class IdRecycleTest {
+
+    @Test
+    public void testMergeAdjacent() {
+        List<IdRecycle> merged = IdRecycle.merge(
+                Arrays.asList(recycle(1, 0, 1, 21, 30), recycle(1, 0, 1, 11, 20), recycle(1, 0, 1, 1, 5)));
+
+        assertEquals(2, merged.size());
+        assertRange(merged.get(0), 1, 5);
+        assertRange(merged.get(1), 11, 30);
+    }
+
+    @Test
+    public void testMergeOverlapping() {
+        List<IdRecycle> merged = IdRecycle.merge(Arrays.asList(recycle(1, 0, 1, 1, 10), recycle(1, 0, 1, 5, 8)));
+
+        assertEquals(1, merged.size());
+        assertRange(merged.get(0), 1, 10);
+    }
+
+    @Test
+    public void testNotMergeDifferentStripe() {
+        List<IdRecycle> merged = IdRecycle.merge(Arrays.asList(
+                recycle(1, 0, 2, 1, 10), recycle(1, 1, 2, 11, 20), recycle(1, 0, 1, 11, 20), recycle(2, 0, 2, 11, 20)));
+
+        assertEquals(4, merged.size());
+    }
+
+    private static IdRecycle recycle(int type, int stripe, int stripes, long start, long end) {
+        IdRecycle recycle = new IdRecycle();
+        recycle.setType(type);
+        recycle.setStripe(stripe);
+        recycle.setStripes(stripes);
+        recycle.setStart(start);
+        recycle.setEnd(end);
+        return recycle;
+    }
+
+    private static void assertRange(IdRecycle recycle, long start, long end) {
+        assertEquals(start, recycle.getStart());
+        assertEquals(end, recycle.getEnd());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.zcn.sequence.id.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author zicung
+ */
+public class SegmentTest {
+
+    @Test
+    public void testNext() {
+        Segment segment = new Segment();
+        assertNull(segment.next());
+
+        segment.refresh(10, 3);
+        assertEquals(8L, segment.next());
+        assertEquals(9L, segment.next());
+        assertEquals(10L, segment.next());
+        assertNull(segment.next());
+        assertEquals(0, segment.getRemaining());
+    }
+
+    @Test
+    public void testStride() {
+        Segment segment = new Segment();
+        segment.refresh(10, 2, 3, 1);
+        assertEquals(28L, segment.next());
+        assertEquals(31L, segment.next());
+        assertNull(segment.next());
+    }
+
+    @Test
+    public void testStripesDoNotOverlap() {
+        int stripes = 3;
+        Set<Long> ids = new HashSet<>();
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            Segment segment = new Segment();
+            segment.refresh(100, 100, stripes, stripe);
+            Long id;
+            while ((id = segment.next()) != null) {
+                assertTrue(ids.add(id), "Duplicate id " + id);
+            }
+        }
+        assertEquals(300, ids.size());
+    }
+
+    @Test
+    public void testReachThreshold() {
+        Segment segment = new Segment();
+        segment.refresh(10, 10);
+        assertFalse(segment.reachThreshold());
+        for (int i = 0; i < 3; i++) {
+            segment.next();
+        }
+        assertTrue(segment.reachThreshold());
+    }
+
+    @Test
+    public void testDrain() {
+        Segment segment = new Segment();
+        segment.refresh(10, 5, 2, 1);
+        segment.next();
+        segment.next();
+
+        // 已使用 6、7，未使用 (7, 10]
+        assertEquals(7, segment.drain());
+        assertEquals(10, segment.getMax());
+        assertEquals(2, segment.getStride());
+        assertEquals(1, segment.getOffset());
+        assertNull(segment.next());
+        assertEquals(0, segment.getRemaining());
+    }
+
+    @Test
+    public void testDrainExhausted() {
+        Segment segment = new Segment();
+        segment.refresh(2, 2);
+        segment.next();
+        segment.next();
+        segment.next();
+        assertEquals(2, segment.drain());
+        assertNull(segment.next());
+
+        // 从未填充的Segment没有可归还的区间
+        assertEquals(0, new Segment().drain());
+    }
+}